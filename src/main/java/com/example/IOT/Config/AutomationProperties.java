@@ -0,0 +1,39 @@
+package com.example.IOT.Config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Cấu hình luật tự động (automation.rules[i].*) trong application.properties
+@Component
+@ConfigurationProperties(prefix = "automation")
+@Data
+public class AutomationProperties {
+
+    private boolean enabled = false;
+    private List<Rule> rules = new ArrayList<>();
+
+    @Data
+    public static class Rule {
+        private String name;
+        // temperature, humidity, light, cb1, cb2, cb3
+        private String field;
+        // value (giá trị hiện tại), avg hoặc max trong windowSeconds giây gần nhất
+        private String aggregate = "value";
+        private long windowSeconds = 0;
+        // ">" hoặc "<"
+        private String operator = ">";
+        private double threshold;
+        // Phải quay lại qua (threshold -/+ hysteresis) thì luật mới được kích hoạt lại
+        private double hysteresis = 0;
+        private String device;
+        private String status = "ON";
+        // Lệnh gửi khi điều kiện hết (để trống = không gửi)
+        private String releaseStatus;
+        // Khoảng cách tối thiểu giữa 2 lệnh của cùng 1 luật
+        private long cooldownSeconds = 10;
+    }
+}
@@ -4,11 +4,13 @@ import com.fasterxml.jackson.databind.JsonNode;
 import java.time.LocalDateTime;
 import java.time.Instant;
 import java.time.ZoneId;
+import java.util.List;
 
 import com.example.IOT.Entity.DataSensor;
 import com.example.IOT.Entity.ActionHistory;
-import com.example.IOT.Repository.DataSensorRepository;
 import com.example.IOT.Repository.ActionHistoryRepository;
+import com.example.IOT.Service.SensorBinaryCodec;
+import com.example.IOT.Service.SensorIngestService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.springframework.context.annotation.Bean;
@@ -19,6 +21,7 @@ import org.springframework.integration.mqtt.core.DefaultMqttPahoClientFactory;
 import org.springframework.integration.mqtt.core.MqttPahoClientFactory;
 import org.springframework.integration.mqtt.inbound.MqttPahoMessageDrivenChannelAdapter;
 import org.springframework.integration.mqtt.outbound.MqttPahoMessageHandler;
+import org.springframework.integration.mqtt.support.DefaultPahoMessageConverter;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessageHandler;
 
@@ -32,6 +35,7 @@ public class MqttConfig {
 
     // Client ID
     private final String clientIdSubDatasensor = "backendSubscriberDatasensor";
+    private final String clientIdSubDatasensorBin = "backendSubscriberDatasensorBin";
     private final String clientIdSubStatus = "backendSubscriberStatus";
     private final String clientIdPubControl = "backendPublisher";
 
@@ -55,6 +59,9 @@ public class MqttConfig {
     @Bean
     public MessageChannel datasensorChannel() { return new DirectChannel(); }
 
+    @Bean
+    public MessageChannel datasensorBinChannel() { return new DirectChannel(); }
+
     @Bean
     public MessageChannel statusChannel() { return new DirectChannel(); }
 
@@ -82,6 +89,20 @@ public class MqttConfig {
         return adapter;
     }
 
+    // Subscriber cho datasensor dạng binary (payload giữ nguyên byte[])
+    @Bean
+    public MqttPahoMessageDrivenChannelAdapter datasensorBinAdapter() {
+        MqttPahoMessageDrivenChannelAdapter adapter =
+                new MqttPahoMessageDrivenChannelAdapter(clientIdSubDatasensorBin,
+                        mqttClientFactory(), "esp8266/datasensor/bin");
+        DefaultPahoMessageConverter converter = new DefaultPahoMessageConverter();
+        converter.setPayloadAsBytes(true);
+        adapter.setConverter(converter);
+        adapter.setOutputChannel(datasensorBinChannel());
+        adapter.setQos(1);
+        return adapter;
+    }
+
     // Subscriber cho status
     @Bean
     public MqttPahoMessageDrivenChannelAdapter statusAdapter() {
@@ -97,7 +118,7 @@ public class MqttConfig {
     // Handler cho datasensor
     @Bean
     @ServiceActivator(inputChannel = "datasensorChannel")
-    public MessageHandler datasensorHandler(DataSensorRepository dataSensorRepository, ObjectMapper mapper) {
+    public MessageHandler datasensorHandler(SensorIngestService sensorIngestService, ObjectMapper mapper) {
         return message -> {
             try {
                 JsonNode node = mapper.readTree(message.getPayload().toString());
@@ -117,11 +138,37 @@ public class MqttConfig {
                 sensor.setCb2(node.has("cb2") ? node.get("cb2").asInt() : 0);
                 sensor.setCb3(node.has("cb3") ? node.get("cb3").asInt() : 0);
 
-                dataSensorRepository.save(sensor);
-                System.out.println("✅ Saved datasensor: " + sensor);
+                sensorIngestService.ingest(sensor);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        };
+    }
+
+    // Handler cho datasensor dạng binary (nhiều bản tin / frame) - cùng luồng ingest với JSON
+    @Bean
+    @ServiceActivator(inputChannel = "datasensorBinChannel")
+    public MessageHandler datasensorBinHandler(SensorIngestService sensorIngestService) {
+        return message -> {
+            List<DataSensor> readings;
+            try {
+                readings = SensorBinaryCodec.decode((byte[]) message.getPayload());
             } catch (Exception e) {
                 e.printStackTrace();
+                return;
             }
+
+            // Lỗi ở 1 bản tin không làm mất các bản tin còn lại trong frame
+            int failed = 0;
+            for (DataSensor sensor : readings) {
+                try {
+                    sensorIngestService.ingest(sensor);
+                } catch (Exception e) {
+                    failed++;
+                    e.printStackTrace();
+                }
+            }
+            System.out.println("✅ Ingested binary frame: " + (readings.size() - failed) + "/" + readings.size() + " readings");
         };
     }
 
@@ -130,6 +177,7 @@ public class MqttConfig {
     @ServiceActivator(inputChannel = "statusChannel")
     public MessageHandler statusHandler(ActionHistoryRepository actionHistoryRepository, 
                                         com.example.IOT.Service.DeviceControlService deviceControlService,
+                                        com.example.IOT.Service.DeviceStateService deviceStateService,
                                         ObjectMapper mapper) {
         return message -> {
             try {
@@ -148,6 +196,9 @@ public class MqttConfig {
                 // Lưu vào database
                 actionHistoryRepository.save(history);
                 System.out.println("✅ Saved action history: " + history);
+
+                // Cập nhật registry trạng thái thiết bị trong bộ nhớ
+                deviceStateService.update(history);
                 
                 // 👇 THÊM DÒNG NÀY: Notify cho pending request
                 deviceControlService.completeRequest(history.getDevice(), history);
@@ -3,18 +3,26 @@ package com.example.IOT.Controller;
 import com.example.IOT.Entity.ActionHistory;
 import com.example.IOT.Repository.ActionHistoryRepository;
 import com.example.IOT.Service.DeviceControlService;
+import com.example.IOT.Service.DataSensorService;
+import com.example.IOT.Service.DeviceStateService;
+import com.example.IOT.Service.SensorDeadbandService;
+import com.example.IOT.dto.ActionHistoryDto;
 import com.example.IOT.dto.ControlDto;
 import com.example.IOT.Entity.DataSensor;
 
 import com.example.IOT.Repository.DataSensorRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.MessageChannel;
-import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
 
 @RestController
@@ -26,36 +34,100 @@ public class DashboardController {
     @Autowired
     private ActionHistoryRepository actionHistoryRepository;
 
-    @Autowired
-    private MessageChannel controlChannel;
-    
     @Autowired
     private DeviceControlService deviceControlService;
 
+    @Autowired
+    private SensorDeadbandService sensorDeadbandService;
+
+    @Autowired
+    private DeviceStateService deviceStateService;
+
+    @Autowired
+    private DataSensorService dataSensorService;
+
+    // Số dòng tối đa cho 1 lần gọi /chart/range
+    private static final int MAX_RANGE_ROWS = 10000;
+
     // API lấy dữ liệu cho biểu đồ
     @GetMapping("/chart")
     public List<DataSensor> getLatestData() {
+        // Ưu tiên bản tin mới nhất trong bộ nhớ (có thể chưa được lưu DB do deadband)
+        DataSensor latest = sensorDeadbandService.getLatest();
+        if (latest != null) {
+            return List.of(latest);
+        }
         return dataSensorRepository.findTop1ByOrderByTimeDesc();
     }
 
+    // API lấy lịch sử biểu đồ theo khoảng thời gian (giờ UTC, ISO, ví dụ 2025-01-01T08:00:00).
+    // Mặc định 1 giờ gần nhất; trả về tối đa limit bản ghi mới nhất, tăng dần theo time.
+    @GetMapping("/chart/range")
+    public List<DataSensor> getChartRange(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "1000") int limit
+    ) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now(ZoneOffset.UTC);
+        LocalDateTime start = from != null ? from : end.minusHours(1);
+        return dataSensorService.getRange(start, end, Math.max(1, Math.min(limit, MAX_RANGE_ROWS)));
+    }
+
+    // API thống kê số bản tin nhận được / lưu DB (tỉ lệ giảm ghi)
+    @GetMapping("/deadband")
+    public Map<String, Object> getDeadbandStats() {
+        return sensorDeadbandService.getStats();
+    }
+
+    // API lấy trạng thái hiện tại của các thiết bị (từ bộ nhớ, không truy vấn action_history)
+    @GetMapping("/devices")
+    public Map<String, ActionHistoryDto> getDeviceStates() {
+        Map<String, ActionHistoryDto> result = new TreeMap<>();
+        deviceStateService.getAll().forEach((device, history) -> result.put(device, new ActionHistoryDto(
+                history.getId(),
+                history.getDevice(),
+                history.getStatus(),
+                history.getTime()
+        )));
+        return result;
+    }
+
     // API điều khiển bật tắt - Đợi phản hồi từ ESP8266
     @PostMapping("/control")
     public CompletableFuture<Map<String, Object>> controlDevice(@RequestBody ControlDto request) {
         String device = request.getDevice();
         String status = request.getStatus();
         
-        // Tạo pending request để đợi phản hồi
-        CompletableFuture<ActionHistory> pendingRequest = deviceControlService.createPendingRequest(device);
-        
-        // Gửi lệnh điều khiển lên MQTT
-        String payload = String.format("{\"device\":\"%s\",\"status\":\"%s\"}", device, status);
-        controlChannel.send(MessageBuilder.withPayload(payload)
-                .setHeader("mqtt_topic", "esp8266/control")
-                .build());
-        
-        System.out.println("📤 Sent control command: " + payload);
-        
-        // Đợi phản hồi từ ESP8266 (qua statusHandler)
+        // Gửi lệnh qua hàng đợi gom lệnh, đợi phản hồi từ ESP8266 (qua statusHandler)
+        return toResponse(device, status, deviceControlService.submitCommand(device, status));
+    }
+
+    // API điều khiển nhiều thiết bị cùng lúc - publish 1 lượt, đợi các phản hồi song song
+    @PostMapping("/control/batch")
+    public CompletableFuture<Map<String, Object>> controlDevices(@RequestBody List<ControlDto> requests) {
+        Map<String, String> requested = new LinkedHashMap<>();
+        for (ControlDto request : requests) {
+            requested.put(request.getDevice(), request.getStatus()); // lệnh sau ghi đè lệnh trước
+        }
+
+        Map<String, CompletableFuture<ActionHistory>> pending = deviceControlService.submitBatch(requests);
+
+        List<CompletableFuture<Map<String, Object>>> results = new ArrayList<>();
+        pending.forEach((device, future) -> results.add(toResponse(device, requested.get(device), future)));
+
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[0]))
+            .thenApply(done -> {
+                List<Map<String, Object>> items = results.stream().map(CompletableFuture::join).toList();
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", items.stream().allMatch(item -> Boolean.TRUE.equals(item.get("success"))));
+                response.put("results", items);
+                return response;
+            });
+    }
+
+    // Chuyển kết quả đợi phản hồi thành response cho 1 thiết bị
+    private CompletableFuture<Map<String, Object>> toResponse(String device, String status,
+                                                              CompletableFuture<ActionHistory> pendingRequest) {
         return pendingRequest
             .thenApply(actionHistory -> {
                 // Thành công - trả về kết quả
@@ -12,6 +12,11 @@ import java.util.List;
 public interface ActionHistoryRepository extends JpaRepository<ActionHistory, Long> {
     List<ActionHistory> findTop1ByOrderByTimeDesc();
 
+    // Trạng thái mới nhất của từng thiết bị (id tự tăng nên MAX(id) là bản ghi cuối)
+    @Query("SELECT a FROM ActionHistory a " +
+            "WHERE a.id IN (SELECT MAX(b.id) FROM ActionHistory b GROUP BY b.device)")
+    List<ActionHistory> findLatestPerDevice();
+
 
     // Search id
     @Query("SELECT a FROM ActionHistory a " +
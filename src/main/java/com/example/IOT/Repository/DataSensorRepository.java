@@ -2,6 +2,7 @@ package com.example.IOT.Repository;
 
 import com.example.IOT.Entity.DataSensor;
 import org.springframework.data.jpa.repository.JpaRepository;
+import java.time.LocalDateTime;
 import java.util.List;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -10,6 +11,10 @@ import org.springframework.data.domain.Pageable;
 
 public interface DataSensorRepository extends JpaRepository<DataSensor, Long> {
     List<DataSensor> findTop1ByOrderByTimeDesc();
+    // Lấy theo khoảng thời gian, giới hạn số dòng qua Pageable (dùng khi ngoài cửa sổ SensorHistoryStore)
+    List<DataSensor> findByTimeGreaterThanEqual(LocalDateTime from, Pageable pageable);
+    List<DataSensor> findByTimeBetween(LocalDateTime from, LocalDateTime to, Pageable pageable);
+    List<DataSensor> findByTimeGreaterThanEqualAndTimeLessThan(LocalDateTime from, LocalDateTime to, Pageable pageable);
     // Tìm theo id
     Page<DataSensor> findById(Long id, Pageable pageable);
     // Tìm theo temperature
@@ -10,6 +10,11 @@ import org.springframework.data.domain.PageRequest;
 import com.example.IOT.Repository.DataSensorRepository;
 import org.springframework.data.domain.Sort;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 
 @Service
 public class DataSensorService {
@@ -17,6 +22,9 @@ public class DataSensorService {
     @Autowired
     private DataSensorRepository dataSensorRepository;
 
+    @Autowired
+    private SensorHistoryStore sensorHistoryStore;
+
     // Lấy tất cả có phân trang
     public Page<DataSensorDto> getAll(int page, int size, String sortBy, String direction) {
         Sort sort = direction.equalsIgnoreCase("desc") ?
@@ -98,5 +106,28 @@ public class DataSensorService {
                 d.getLight()
         ));
     }
-}
 
+    // Lấy tối đa limit bản ghi mới nhất trong [from, to], tăng dần theo time:
+    // phần nằm trong cửa sổ bộ nhớ lấy từ SensorHistoryStore, phần cũ hơn mới truy vấn DB
+    public List<DataSensor> getRange(LocalDateTime from, LocalDateTime to, int limit) {
+        LocalDateTime oldest = sensorHistoryStore.getOldestTime();
+        List<DataSensor> recent = List.of();
+
+        if (oldest != null && !to.isBefore(oldest)) {
+            recent = sensorHistoryStore.findRange(from.isBefore(oldest) ? oldest : from, to, limit);
+        }
+
+        int remaining = limit - recent.size();
+        if (remaining <= 0 || (oldest != null && !from.isBefore(oldest))) {
+            return recent;
+        }
+
+        Pageable newestFirst = PageRequest.of(0, remaining, Sort.by("time").descending());
+        List<DataSensor> older = new ArrayList<>(oldest == null || to.isBefore(oldest)
+                ? dataSensorRepository.findByTimeBetween(from, to, newestFirst)
+                : dataSensorRepository.findByTimeGreaterThanEqualAndTimeLessThan(from, oldest, newestFirst));
+        Collections.reverse(older);
+        older.addAll(recent);
+        return older;
+    }
+}
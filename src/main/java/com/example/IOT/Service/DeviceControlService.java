@@ -1,54 +1,216 @@
 package com.example.IOT.Service;
 
 import com.example.IOT.Entity.ActionHistory;
+import com.example.IOT.dto.ControlDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 @Service
 public class DeviceControlService {
-    
+
+    @Autowired
+    private MessageChannel controlChannel;
+
+    // Thời gian gom lệnh: các lệnh cùng thiết bị trong khoảng này chỉ gửi trạng thái cuối cùng
+    @Value("${device.control.coalesce-millis:150}")
+    private long coalesceMillis;
+
+    // Lệnh đang chờ gửi và thời điểm gửi gần nhất theo thiết bị (guarded by this)
+    private final Map<String, QueuedCommand> queuedCommands = new HashMap<>();
+    private final Map<String, Long> lastSentAt = new HashMap<>();
+
     // Map để lưu các request đang chờ phản hồi
     // Key: device name (DEV1, DEV2, DEV3)
-    // Value: CompletableFuture chờ kết quả
-    private final Map<String, CompletableFuture<ActionHistory>> pendingRequests = new ConcurrentHashMap<>();
+    // Value: các lệnh đã gửi đang chờ, kèm trạng thái mong muốn (guarded by pendingRequests)
+    private final Map<String, List<PendingAck>> pendingRequests = new HashMap<>();
 
-    public CompletableFuture<ActionHistory> createPendingRequest(String device) {
-        CompletableFuture<ActionHistory> future = new CompletableFuture<>();
-        pendingRequests.put(device, future);
+    /**
+     * Tạo request chờ phản hồi cho lệnh (device, status).
+     * Phản hồi từ ESP8266 chỉ hoàn thành các request có cùng trạng thái.
+     */
+    public CompletableFuture<ActionHistory> createPendingRequest(String device, String status) {
+        PendingAck pending = new PendingAck(status);
+        synchronized (pendingRequests) {
+            pendingRequests.computeIfAbsent(device, d -> new ArrayList<>()).add(pending);
+        }
         
         // Timeout sau 4 giây nếu không có phản hồi
         CompletableFuture.delayedExecutor(4, TimeUnit.SECONDS).execute(() -> {
-            if (!future.isDone()) {
-                future.completeExceptionally(new RuntimeException("Timeout: No response from device"));
-                pendingRequests.remove(device);
+            if (!pending.future.isDone()) {
+                pending.future.completeExceptionally(new RuntimeException("Timeout: No response from device"));
             }
+            removePending(device, pending);
         });
         
-        return future;
+        return pending.future;
+    }
+
+    /**
+     * Gửi lệnh điều khiển, có gom lệnh theo thiết bị.
+     * Lệnh đầu tiên được gửi ngay; các lệnh tới trong coalesceMillis sau đó chỉ cập nhật
+     * trạng thái mong muốn và được gửi 1 lần (trạng thái cuối cùng) khi hết khoảng chờ.
+     * Future hoàn thành khi ESP8266 phản hồi trạng thái (hoặc timeout).
+     */
+    public CompletableFuture<ActionHistory> submitCommand(String device, String status) {
+        QueuedCommand command;
+        synchronized (this) {
+            QueuedCommand queued = queuedCommands.get(device);
+            if (queued != null) {
+                queued.status = status;
+                System.out.println("🔁 Coalesced command for device: " + device + " → " + status);
+                return queued.result;
+            }
+
+            command = new QueuedCommand();
+            command.status = status;
+
+            long now = System.currentTimeMillis();
+            Long lastSent = lastSentAt.get(device);
+            long wait = lastSent == null ? 0 : lastSent + coalesceMillis - now;
+            if (wait > 0) {
+                // Vừa gửi cho thiết bị này: chờ hết khoảng gom rồi gửi trạng thái cuối
+                queuedCommands.put(device, command);
+                CompletableFuture.delayedExecutor(wait, TimeUnit.MILLISECONDS).execute(() -> flush(device));
+                return command.result;
+            }
+            lastSentAt.put(device, now);
+        }
+
+        send(device, command);
+        return command.result;
+    }
+
+    /**
+     * Gửi nhiều lệnh cùng lúc trong 1 lượt; các phản hồi được đợi song song
+     */
+    public Map<String, CompletableFuture<ActionHistory>> submitBatch(List<ControlDto> commands) {
+        // Mỗi thiết bị chỉ 1 lệnh trong 1 batch: lệnh sau ghi đè lệnh trước
+        Map<String, String> desired = new LinkedHashMap<>();
+        for (ControlDto command : commands) {
+            desired.put(command.getDevice(), command.getStatus());
+        }
+
+        Map<String, CompletableFuture<ActionHistory>> results = new LinkedHashMap<>();
+        desired.forEach((device, status) -> results.put(device, submitCommand(device, status)));
+        return results;
+    }
+
+    // Gửi lệnh đã gom của 1 thiết bị khi hết khoảng chờ
+    private void flush(String device) {
+        QueuedCommand command;
+        synchronized (this) {
+            command = queuedCommands.remove(device);
+            if (command == null) {
+                return;
+            }
+            lastSentAt.put(device, System.currentTimeMillis());
+        }
+        send(device, command);
+    }
+
+    // Publish 1 lệnh lên MQTT và nối phản hồi của ESP8266 vào kết quả
+    private void send(String device, QueuedCommand command) {
+        String status = command.status;
+        CompletableFuture<ActionHistory> ack = createPendingRequest(device, status);
+        ack.whenComplete((history, ex) -> {
+            if (ex == null) {
+                command.result.complete(history);
+            } else {
+                command.result.completeExceptionally(ex);
+            }
+        });
+
+        try {
+            String payload = String.format("{\"device\":\"%s\",\"status\":\"%s\"}", device, status);
+            controlChannel.send(MessageBuilder.withPayload(payload)
+                    .setHeader("mqtt_topic", "esp8266/control")
+                    .build());
+            System.out.println("📤 Sent control command: " + payload);
+        } catch (Exception e) {
+            ack.completeExceptionally(new RuntimeException("Send failed: " + e.getMessage()));
+        }
     }
     
     /**
-     * Hoàn thành request khi nhận được status từ ESP8266
+     * Hoàn thành request khi nhận được status từ ESP8266.
+     * Chỉ các request chờ đúng trạng thái này mới được hoàn thành (phản hồi ON trễ
+     * không được trả cho lệnh OFF gửi sau).
      */
     public void completeRequest(String device, ActionHistory actionHistory) {
-        CompletableFuture<ActionHistory> future = pendingRequests.remove(device);
-        if (future != null && !future.isDone()) {
-            future.complete(actionHistory);
-            System.out.println("✅ Completed request for device: " + device);
+        List<PendingAck> matched = new ArrayList<>();
+        synchronized (pendingRequests) {
+            List<PendingAck> pending = pendingRequests.get(device);
+            if (pending == null) {
+                return;
+            }
+            pending.removeIf(p -> {
+                if (p.status != null && p.status.equalsIgnoreCase(actionHistory.getStatus())) {
+                    matched.add(p);
+                    return true;
+                }
+                return false;
+            });
+            if (pending.isEmpty()) {
+                pendingRequests.remove(device);
+            }
+        }
+
+        for (PendingAck p : matched) {
+            if (p.future.complete(actionHistory)) {
+                System.out.println("✅ Completed request for device: " + device + " → " + actionHistory.getStatus());
+            }
         }
     }
     
     /**
-     * Hủy request nếu có lỗi
+     * Hủy tất cả request đang chờ của thiết bị nếu có lỗi
      */
     public void cancelRequest(String device, String errorMessage) {
-        CompletableFuture<ActionHistory> future = pendingRequests.remove(device);
-        if (future != null && !future.isDone()) {
-            future.completeExceptionally(new RuntimeException(errorMessage));
+        List<PendingAck> pending;
+        synchronized (pendingRequests) {
+            pending = pendingRequests.remove(device);
+        }
+        if (pending != null) {
+            pending.forEach(p -> p.future.completeExceptionally(new RuntimeException(errorMessage)));
+        }
+    }
+
+    private void removePending(String device, PendingAck ack) {
+        synchronized (pendingRequests) {
+            List<PendingAck> pending = pendingRequests.get(device);
+            if (pending != null) {
+                pending.remove(ack);
+                if (pending.isEmpty()) {
+                    pendingRequests.remove(device);
+                }
+            }
         }
     }
+
+    // Request đang chờ phản hồi: trạng thái đã gửi + future
+    private static class PendingAck {
+        final String status;
+        final CompletableFuture<ActionHistory> future = new CompletableFuture<>();
+
+        PendingAck(String status) {
+            this.status = status;
+        }
+    }
+
+    // Lệnh chờ gửi của 1 thiết bị
+    private static class QueuedCommand {
+        volatile String status;
+        final CompletableFuture<ActionHistory> result = new CompletableFuture<>();
+    }
 }
@@ -0,0 +1,64 @@
+package com.example.IOT.Service;
+
+import com.example.IOT.Entity.ActionHistory;
+import com.example.IOT.Repository.ActionHistoryRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Service
+public class DeviceStateService {
+
+    @Autowired
+    private ActionHistoryRepository actionHistoryRepository;
+
+    // Snapshot bất biến: device -> trạng thái mới nhất.
+    // Ghi tạo bản sao mới rồi thay tham chiếu, đọc không cần khóa và luôn nhất quán.
+    private volatile Map<String, ActionHistory> states = Map.of();
+
+    /**
+     * Khôi phục trạng thái lúc khởi động bằng 1 truy vấn "latest per device"
+     */
+    @PostConstruct
+    public void restore() {
+        try {
+            Map<String, ActionHistory> restored = new HashMap<>();
+            for (ActionHistory history : actionHistoryRepository.findLatestPerDevice()) {
+                if (history.getDevice() != null) {
+                    restored.put(history.getDevice(), history);
+                }
+            }
+            synchronized (this) {
+                // Trạng thái nhận được từ MQTT trong lúc khôi phục được ưu tiên
+                restored.putAll(states);
+                states = Map.copyOf(restored);
+            }
+            System.out.println("✅ Restored device states: " + restored.keySet());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Cập nhật trạng thái khi nhận status từ ESP8266 (gọi từ statusHandler)
+     */
+    public synchronized void update(ActionHistory history) {
+        if (history.getDevice() == null) {
+            return;
+        }
+        Map<String, ActionHistory> next = new HashMap<>(states);
+        next.put(history.getDevice(), history);
+        states = Map.copyOf(next);
+    }
+
+    public Map<String, ActionHistory> getAll() {
+        return states;
+    }
+
+    public ActionHistory get(String device) {
+        return states.get(device);
+    }
+}
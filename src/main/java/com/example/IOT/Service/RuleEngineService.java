@@ -0,0 +1,274 @@
+package com.example.IOT.Service;
+
+import com.example.IOT.Config.AutomationProperties;
+import com.example.IOT.Entity.DataSensor;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+@Service
+public class RuleEngineService {
+
+    @Autowired
+    private AutomationProperties automationProperties;
+
+    @Autowired
+    private MessageChannel controlChannel;
+
+    // Danh sách luật đã biên dịch sẵn (parse field/operator 1 lần lúc khởi động)
+    private final List<CompiledRule> rules = new ArrayList<>();
+
+    @PostConstruct
+    public void compile() {
+        rules.clear();
+        if (!automationProperties.isEnabled()) {
+            return;
+        }
+        for (AutomationProperties.Rule rule : automationProperties.getRules()) {
+            rules.add(new CompiledRule(rule));
+            System.out.println("⚙️ Loaded automation rule: " + rule.getName());
+        }
+    }
+
+    /**
+     * Đánh giá tất cả luật với bản tin mới (gọi từ SensorIngestService).
+     * Chi phí mỗi bản tin là O(số luật), không phụ thuộc lượng lịch sử.
+     * Lệnh được publish sau khi đánh giá xong, ngoài khóa; lỗi publish chỉ được log lại.
+     */
+    public void onReading(DataSensor sensor) {
+        if (rules.isEmpty()) {
+            return;
+        }
+        long ts = sensor.getTime() != null
+                ? sensor.getTime().toInstant(ZoneOffset.UTC).toEpochMilli()
+                : System.currentTimeMillis();
+
+        List<String[]> commands = new ArrayList<>();
+        synchronized (this) {
+            for (CompiledRule rule : rules) {
+                String command = rule.evaluate(ts, rule.extractor.applyAsDouble(sensor));
+                if (command != null) {
+                    commands.add(new String[]{rule.name, rule.device, command});
+                }
+            }
+        }
+
+        for (String[] command : commands) {
+            publish(command[0], command[1], command[2]);
+        }
+    }
+
+    private void publish(String ruleName, String device, String status) {
+        String payload = String.format("{\"device\":\"%s\",\"status\":\"%s\"}", device, status);
+        try {
+            controlChannel.send(MessageBuilder.withPayload(payload)
+                    .setHeader("mqtt_topic", "esp8266/control")
+                    .build());
+            System.out.println("🤖 Rule " + ruleName + " sent control command: " + payload);
+        } catch (Exception e) {
+            System.err.println("❌ Rule " + ruleName + " failed to send " + payload + ": " + e.getMessage());
+        }
+    }
+
+    private static ToDoubleFunction<DataSensor> extractor(String field) {
+        switch (field.toLowerCase()) {
+            case "temperature": return DataSensor::getTemperature;
+            case "humidity": return DataSensor::getHumidity;
+            case "light": return DataSensor::getLight;
+            case "cb1": return DataSensor::getCb1;
+            case "cb2": return DataSensor::getCb2;
+            case "cb3": return DataSensor::getCb3;
+            default:
+                throw new IllegalArgumentException("Trường không hợp lệ: " + field);
+        }
+    }
+
+    // ===================== COMPILED RULE =====================
+    private static class CompiledRule {
+        final String name;
+        final String device;
+        final String status;
+        final String releaseStatus;
+        final ToDoubleFunction<DataSensor> extractor;
+        final String aggregate;
+        final boolean greater;
+        final double threshold;
+        final double releaseThreshold;
+        final long cooldownMillis;
+        final SlidingWindow window;
+
+        boolean active = false;
+        long lastFired = Long.MIN_VALUE;
+
+        CompiledRule(AutomationProperties.Rule rule) {
+            this.name = rule.getName();
+            if (rule.getField() == null || rule.getDevice() == null || rule.getDevice().isBlank()
+                    || rule.getStatus() == null || rule.getStatus().isBlank()) {
+                throw new IllegalArgumentException("Luật " + name + " thiếu field, device hoặc status");
+            }
+            this.device = rule.getDevice();
+            this.status = rule.getStatus();
+            this.releaseStatus = rule.getReleaseStatus();
+            this.extractor = extractor(rule.getField());
+            this.aggregate = rule.getAggregate().toLowerCase();
+            if (!aggregate.equals("value") && !aggregate.equals("avg") && !aggregate.equals("max")) {
+                throw new IllegalArgumentException("Aggregate không hợp lệ: " + rule.getAggregate());
+            }
+            if (!aggregate.equals("value") && rule.getWindowSeconds() <= 0) {
+                throw new IllegalArgumentException("Luật " + name + ": window-seconds phải lớn hơn 0 khi dùng " + aggregate);
+            }
+            if (!rule.getOperator().equals(">") && !rule.getOperator().equals("<")) {
+                throw new IllegalArgumentException("Operator không hợp lệ: " + rule.getOperator());
+            }
+            this.greater = rule.getOperator().equals(">");
+            this.threshold = rule.getThreshold();
+            this.releaseThreshold = greater
+                    ? rule.getThreshold() - rule.getHysteresis()
+                    : rule.getThreshold() + rule.getHysteresis();
+            this.cooldownMillis = rule.getCooldownSeconds() * 1000;
+            this.window = aggregate.equals("value") ? null : new SlidingWindow(rule.getWindowSeconds() * 1000);
+        }
+
+        // Trả về lệnh cần gửi (status/releaseStatus) hoặc null
+        String evaluate(long ts, double value) {
+            double v = value;
+            if (window != null) {
+                window.add(ts, value);
+                v = aggregate.equals("avg") ? window.avg() : window.max();
+            }
+
+            boolean trigger = greater ? v > threshold : v < threshold;
+            boolean release = greater ? v < releaseThreshold : v > releaseThreshold;
+
+            // Chống gửi lệnh liên tục (rate limit theo đồng hồ server)
+            long now = System.currentTimeMillis();
+            if (lastFired != Long.MIN_VALUE && now - lastFired < cooldownMillis) {
+                return null;
+            }
+
+            if (!active && trigger) {
+                active = true;
+                lastFired = now;
+                return status;
+            }
+            if (active && release) {
+                active = false;
+                if (releaseStatus != null && !releaseStatus.isBlank()) {
+                    lastFired = now;
+                    return releaseStatus;
+                }
+            }
+            return null;
+        }
+    }
+
+    // ===================== SLIDING WINDOW =====================
+    // Cửa sổ trượt theo thời gian: tổng chạy cho avg, deque đơn điệu cho max.
+    // Mỗi phần tử vào/ra đúng 1 lần nên chi phí trung bình O(1) mỗi bản tin.
+    private static class SlidingWindow {
+        final long spanMillis;
+
+        // Ring buffer tất cả mẫu trong cửa sổ
+        long[] times = new long[16];
+        double[] values = new double[16];
+        int head = 0;
+        int size = 0;
+        double sum = 0;
+        long lastTs = Long.MIN_VALUE;   // thời gian mới nhất đã thấy
+
+        // Ring buffer deque đơn điệu giảm (phục vụ max)
+        long[] maxTimes = new long[16];
+        double[] maxValues = new double[16];
+        int maxHead = 0;
+        int maxSize = 0;
+
+        SlidingWindow(long spanMillis) {
+            this.spanMillis = spanMillis;
+        }
+
+        void add(long ts, double value) {
+            // Đồng hồ ESP8266 bị reset (lùi nhiều): các mẫu cũ mang thời gian "tương lai"
+            // sẽ không bao giờ bị loại, nên xóa cửa sổ làm lại như SensorHistoryStore
+            if (size > 0 && ts < lastTs - SensorHistoryStore.CLOCK_RESET_MILLIS) {
+                head = 0;
+                size = 0;
+                sum = 0;
+                maxHead = 0;
+                maxSize = 0;
+            }
+            lastTs = Math.max(ts, size > 0 ? lastTs : ts);
+
+            // Bỏ mẫu đã ra khỏi cửa sổ
+            long cutoff = ts - spanMillis;
+            while (size > 0 && times[head] < cutoff) {
+                sum -= values[head];
+                head = (head + 1) % times.length;
+                size--;
+            }
+            while (maxSize > 0 && maxTimes[maxHead] < cutoff) {
+                maxHead = (maxHead + 1) % maxTimes.length;
+                maxSize--;
+            }
+
+            // Thêm mẫu mới
+            if (size == times.length) {
+                growSamples();
+            }
+            int tail = (head + size) % times.length;
+            times[tail] = ts;
+            values[tail] = value;
+            size++;
+            sum += value;
+
+            while (maxSize > 0 && maxValues[(maxHead + maxSize - 1) % maxValues.length] <= value) {
+                maxSize--;
+            }
+            if (maxSize == maxTimes.length) {
+                growMax();
+            }
+            int maxTail = (maxHead + maxSize) % maxTimes.length;
+            maxTimes[maxTail] = ts;
+            maxValues[maxTail] = value;
+            maxSize++;
+        }
+
+        double avg() {
+            return size == 0 ? 0 : sum / size;
+        }
+
+        double max() {
+            return maxSize == 0 ? 0 : maxValues[maxHead];
+        }
+
+        private void growSamples() {
+            long[] t = new long[times.length * 2];
+            double[] v = new double[values.length * 2];
+            for (int i = 0; i < size; i++) {
+                t[i] = times[(head + i) % times.length];
+                v[i] = values[(head + i) % values.length];
+            }
+            times = t;
+            values = v;
+            head = 0;
+        }
+
+        private void growMax() {
+            long[] t = new long[maxTimes.length * 2];
+            double[] v = new double[maxValues.length * 2];
+            for (int i = 0; i < maxSize; i++) {
+                t[i] = maxTimes[(maxHead + i) % maxTimes.length];
+                v[i] = maxValues[(maxHead + i) % maxValues.length];
+            }
+            maxTimes = t;
+            maxValues = v;
+            maxHead = 0;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.IOT.Service;
+
+import com.example.IOT.Entity.DataSensor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Frame nhị phân little-endian cho topic esp8266/datasensor/bin.
+ * 1 frame chứa nhiều bản tin của cùng 1 board (ví dụ board buffer 1 phút dữ liệu).
+ *
+ * Header (12 byte):
+ *   u8  version (= 1)
+ *   u8  reserved
+ *   u16 count          số bản tin
+ *   i64 baseTime       epoch millis của bản tin đầu tiên
+ * Mỗi bản tin (18 byte):
+ *   u32 deltaMillis    so với baseTime
+ *   i16 temperature    x100 (°C)
+ *   u16 humidity       x100 (%)
+ *   u16 light          lux
+ *   i16 cb1, cb2, cb3
+ */
+public final class SensorBinaryCodec {
+
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 12;
+    public static final int RECORD_SIZE = 18;
+
+    private SensorBinaryCodec() {
+    }
+
+    public static List<DataSensor> decode(byte[] frame) {
+        if (frame.length < HEADER_SIZE) {
+            throw new IllegalArgumentException("Frame quá ngắn: " + frame.length + " byte");
+        }
+        ByteBuffer buf = ByteBuffer.wrap(frame).order(ByteOrder.LITTLE_ENDIAN);
+
+        int version = Byte.toUnsignedInt(buf.get());
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Version không hỗ trợ: " + version);
+        }
+        buf.get(); // reserved
+        int count = Short.toUnsignedInt(buf.getShort());
+        long baseTime = buf.getLong();
+
+        if (frame.length != HEADER_SIZE + count * RECORD_SIZE) {
+            throw new IllegalArgumentException("Độ dài frame không khớp với count = " + count);
+        }
+
+        List<DataSensor> readings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long ts = baseTime + Integer.toUnsignedLong(buf.getInt());
+
+            DataSensor sensor = new DataSensor();
+            sensor.setTime(Instant.ofEpochMilli(ts)
+                    .atZone(ZoneId.of("UTC"))
+                    .toLocalDateTime()
+                    .withNano(0));
+            sensor.setTemperature(buf.getShort() / 100.0);
+            sensor.setHumidity(Short.toUnsignedInt(buf.getShort()) / 100.0);
+            sensor.setLight(Short.toUnsignedInt(buf.getShort()));
+            sensor.setCb1(buf.getShort());
+            sensor.setCb2(buf.getShort());
+            sensor.setCb3(buf.getShort());
+            readings.add(sensor);
+        }
+        return readings;
+    }
+
+    /**
+     * Mã hóa danh sách bản tin thành 1 frame (dùng cho test/benchmark và firmware tham khảo).
+     * Bản tin phải tăng dần theo thời gian, trong vòng 2^32 ms kể từ bản tin đầu,
+     * và các giá trị phải nằm trong khoảng của kiểu tương ứng.
+     */
+    public static byte[] encode(List<DataSensor> readings) {
+        if (readings.isEmpty() || readings.size() > 0xFFFF) {
+            throw new IllegalArgumentException("Số bản tin không hợp lệ: " + readings.size());
+        }
+        long baseTime = toEpochMillis(readings.get(0).getTime());
+
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + readings.size() * RECORD_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buf.put((byte) VERSION);
+        buf.put((byte) 0);
+        buf.putShort((short) readings.size());
+        buf.putLong(baseTime);
+
+        for (DataSensor sensor : readings) {
+            buf.putInt((int) checkRange("delta", toEpochMillis(sensor.getTime()) - baseTime, 0, 0xFFFFFFFFL));
+            buf.putShort((short) checkRange("temperature", Math.round(sensor.getTemperature() * 100),
+                    Short.MIN_VALUE, Short.MAX_VALUE));
+            buf.putShort((short) checkRange("humidity", Math.round(sensor.getHumidity() * 100), 0, 0xFFFF));
+            buf.putShort((short) checkRange("light", sensor.getLight(), 0, 0xFFFF));
+            buf.putShort((short) checkRange("cb1", sensor.getCb1(), Short.MIN_VALUE, Short.MAX_VALUE));
+            buf.putShort((short) checkRange("cb2", sensor.getCb2(), Short.MIN_VALUE, Short.MAX_VALUE));
+            buf.putShort((short) checkRange("cb3", sensor.getCb3(), Short.MIN_VALUE, Short.MAX_VALUE));
+        }
+        return buf.array();
+    }
+
+    // Giá trị ngoài khoảng biểu diễn được thì báo lỗi thay vì bị cắt bit
+    private static long checkRange(String field, long value, long min, long max) {
+        if (value < min || value > max) {
+            throw new IllegalArgumentException(field + " ngoài khoảng [" + min + ", " + max + "]: " + value);
+        }
+        return value;
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.IOT.Service;
+
+import com.example.IOT.Entity.DataSensor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class SensorDeadbandService {
+
+    // Ngưỡng thay đổi (epsilon) cho từng trường, cấu hình trong application.properties
+    @Value("${sensor.deadband.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sensor.deadband.temperature:0.2}")
+    private double temperatureEpsilon;
+
+    @Value("${sensor.deadband.humidity:0.5}")
+    private double humidityEpsilon;
+
+    @Value("${sensor.deadband.light:5}")
+    private int lightEpsilon;
+
+    @Value("${sensor.deadband.cb:1}")
+    private int cbEpsilon;
+
+    // Quá thời gian này mà chưa lưu thì bắt buộc lưu 1 bản ghi (heartbeat)
+    @Value("${sensor.deadband.heartbeat-seconds:60}")
+    private long heartbeatSeconds;
+
+    // Bản ghi được lưu DB gần nhất (dùng để so sánh ngưỡng)
+    private DataSensor lastPersisted;
+
+    // Bản ghi mới nhất nhận được (kể cả không lưu) - phục vụ /api/dashboard/chart
+    private volatile DataSensor latest;
+
+    // Thống kê
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong persisted = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    /**
+     * Ghi nhận 1 bản tin mới và quyết định có lưu vào DB hay không.
+     * Trả về true nếu có trường thay đổi vượt ngưỡng hoặc đã quá thời gian heartbeat.
+     * Sau khi lưu DB thành công phải gọi markPersisted().
+     */
+    public synchronized boolean shouldPersist(DataSensor sensor) {
+        latest = sensor;
+        received.incrementAndGet();
+
+        boolean persist = !enabled || lastPersisted == null
+                || changed(sensor) || heartbeatExpired(sensor.getTime());
+        if (!persist) {
+            suppressed.incrementAndGet();
+        }
+        return persist;
+    }
+
+    /**
+     * Ghi nhận bản tin đã được lưu DB thành công (mốc so sánh cho các bản tin sau)
+     */
+    public synchronized void markPersisted(DataSensor sensor) {
+        lastPersisted = sensor;
+        persisted.incrementAndGet();
+    }
+
+    /**
+     * Bản tin mới nhất nhận được từ ESP8266 (null nếu chưa có)
+     */
+    public DataSensor getLatest() {
+        return latest;
+    }
+
+    /**
+     * Thống kê tỉ lệ giảm số lần ghi DB
+     */
+    public Map<String, Object> getStats() {
+        long r = received.get();
+        long p = persisted.get();
+        long s = suppressed.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("received", r);
+        stats.put("persisted", p);
+        stats.put("suppressed", s);
+        // Bản tin cần lưu nhưng lưu DB lỗi
+        stats.put("failed", r - p - s);
+        stats.put("writeReductionRatio", r == 0 ? 0.0 : (double) s / r);
+        return stats;
+    }
+
+    private boolean changed(DataSensor sensor) {
+        return Math.abs(sensor.getTemperature() - lastPersisted.getTemperature()) > temperatureEpsilon
+                || Math.abs(sensor.getHumidity() - lastPersisted.getHumidity()) > humidityEpsilon
+                || Math.abs(sensor.getLight() - lastPersisted.getLight()) > lightEpsilon
+                || Math.abs(sensor.getCb1() - lastPersisted.getCb1()) > cbEpsilon
+                || Math.abs(sensor.getCb2() - lastPersisted.getCb2()) > cbEpsilon
+                || Math.abs(sensor.getCb3() - lastPersisted.getCb3()) > cbEpsilon;
+    }
+
+    private boolean heartbeatExpired(LocalDateTime time) {
+        LocalDateTime last = lastPersisted.getTime();
+        if (time == null || last == null) {
+            return true;
+        }
+        // Thời gian lùi (ESP8266 reset đồng hồ) cũng coi như hết hạn
+        Duration elapsed = Duration.between(last, time);
+        return elapsed.isNegative() || elapsed.getSeconds() >= heartbeatSeconds;
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.IOT.Service;
+
+import com.example.IOT.Entity.DataSensor;
+import com.example.IOT.Repository.DataSensorRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@Service
+public class SensorHistoryStore {
+
+    // Thời gian lùi quá mức này thì coi như ESP8266 đã reset đồng hồ
+    static final long CLOCK_RESET_MILLIS = 60_000;
+
+    @Autowired
+    private DataSensorRepository dataSensorRepository;
+
+    // Độ dài cửa sổ giữ trong bộ nhớ
+    @Value("${sensor.history.window-hours:24}")
+    private long windowHours;
+
+    // Số mẫu tối đa (~48 byte / mẫu, 100000 mẫu ≈ 5 MB)
+    @Value("${sensor.history.capacity:100000}")
+    private int capacity;
+
+    // Ring buffer dạng mảng song song kiểu nguyên thủy thay vì List<DataSensor>.
+    // Chỉ chứa các bản ghi đã lưu DB nên dữ liệu (và id) khớp với bảng data_sensor.
+    private long[] ids;
+    private long[] times;          // epoch millis (UTC)
+    private double[] temperatures;
+    private double[] humidities;
+    private int[] lights;
+    private int[] cb1s;
+    private int[] cb2s;
+    private int[] cb3s;
+    private int head = 0;          // vị trí mẫu cũ nhất
+    private int size = 0;
+
+    @PostConstruct
+    public void init() {
+        if (capacity <= 0) {
+            throw new IllegalStateException("sensor.history.capacity phải lớn hơn 0: " + capacity);
+        }
+        ids = new long[capacity];
+        times = new long[capacity];
+        temperatures = new double[capacity];
+        humidities = new double[capacity];
+        lights = new int[capacity];
+        cb1s = new int[capacity];
+        cb2s = new int[capacity];
+        cb3s = new int[capacity];
+
+        // Nạp lại cửa sổ gần nhất từ DB khi khởi động (tối đa capacity bản ghi mới nhất)
+        try {
+            LocalDateTime cutoff = LocalDateTime.now(ZoneOffset.UTC).minusHours(windowHours);
+            List<DataSensor> recent = new ArrayList<>(dataSensorRepository.findByTimeGreaterThanEqual(
+                    cutoff, PageRequest.of(0, capacity, Sort.by("time").descending())));
+            Collections.reverse(recent);
+            recent.forEach(this::add);
+            System.out.println("✅ Loaded sensor history window: " + size + " samples");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Thêm 1 bản ghi đã lưu DB (gọi từ SensorIngestService sau khi save thành công)
+     */
+    public synchronized void add(DataSensor sensor) {
+        if (sensor.getTime() == null) {
+            return;
+        }
+        long ts = toEpochMillis(sensor.getTime());
+
+        // Giữ mảng times tăng dần (phục vụ binary search):
+        // lùi nhiều (reset đồng hồ) thì xóa buffer làm lại,
+        // lùi ít (bản tin đến trễ nhưng đã lưu DB) thì chèn đúng vị trí
+        int pos = size;
+        if (size > 0) {
+            long last = times[physical(size - 1)];
+            if (ts < last - CLOCK_RESET_MILLIS) {
+                System.out.println("⚠️ Sensor clock went backwards, resetting history buffer");
+                head = 0;
+                size = 0;
+                pos = 0;
+            } else if (ts < last) {
+                pos = upperBound(ts);
+            }
+        }
+
+        if (size == capacity) {
+            // Đầy: bỏ mẫu cũ nhất (bản tin trễ còn cũ hơn mẫu cũ nhất thì bỏ qua)
+            if (pos == 0) {
+                return;
+            }
+            head = (head + 1) % capacity;
+            size--;
+            pos--;
+        }
+
+        // Dời phần đuôi sang phải 1 ô để chèn (bản tin đúng thứ tự thì không phải dời)
+        for (int k = size; k > pos; k--) {
+            copy(physical(k - 1), physical(k));
+        }
+        int i = physical(pos);
+        ids[i] = sensor.getId() != null ? sensor.getId() : 0;
+        times[i] = ts;
+        temperatures[i] = sensor.getTemperature();
+        humidities[i] = sensor.getHumidity();
+        lights[i] = sensor.getLight();
+        cb1s[i] = sensor.getCb1();
+        cb2s[i] = sensor.getCb2();
+        cb3s[i] = sensor.getCb3();
+        size++;
+
+        // Bỏ các mẫu đã ra khỏi cửa sổ thời gian
+        long cutoff = times[physical(size - 1)] - windowHours * 3600_000L;
+        while (size > 0 && times[head] < cutoff) {
+            head = (head + 1) % capacity;
+            size--;
+        }
+    }
+
+    /**
+     * Thời điểm mẫu cũ nhất còn trong bộ nhớ (null nếu rỗng)
+     */
+    public synchronized LocalDateTime getOldestTime() {
+        return size == 0 ? null : toLocalDateTime(times[head]);
+    }
+
+    /**
+     * Lấy tối đa limit mẫu mới nhất có time trong [from, to], tăng dần theo thời gian
+     */
+    public synchronized List<DataSensor> findRange(LocalDateTime from, LocalDateTime to, int limit) {
+        List<DataSensor> result = new ArrayList<>();
+        if (size == 0 || limit <= 0 || to.isBefore(from)) {
+            return result;
+        }
+        int start = lowerBound(toEpochMillis(from));
+        int end = lowerBound(toEpochMillis(to) + 1); // mẫu đầu tiên có time > to
+        start = Math.max(start, end - limit);
+
+        for (int k = start; k < end; k++) {
+            int i = physical(k);
+            DataSensor sensor = new DataSensor();
+            sensor.setId(ids[i] != 0 ? ids[i] : null);
+            sensor.setTime(toLocalDateTime(times[i]));
+            sensor.setTemperature(temperatures[i]);
+            sensor.setHumidity(humidities[i]);
+            sensor.setLight(lights[i]);
+            sensor.setCb1(cb1s[i]);
+            sensor.setCb2(cb2s[i]);
+            sensor.setCb3(cb3s[i]);
+            result.add(sensor);
+        }
+        return result;
+    }
+
+    // Binary search: chỉ số logic đầu tiên có time >= ts
+    private int lowerBound(long ts) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[physical(mid)] < ts) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Chỉ số logic đầu tiên có time > ts (bản tin trễ trùng thời gian đứng sau mẫu đã có)
+    private int upperBound(long ts) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[physical(mid)] <= ts) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private void copy(int from, int to) {
+        ids[to] = ids[from];
+        times[to] = times[from];
+        temperatures[to] = temperatures[from];
+        humidities[to] = humidities[from];
+        lights[to] = lights[from];
+        cb1s[to] = cb1s[from];
+        cb2s[to] = cb2s[from];
+        cb3s[to] = cb3s[from];
+    }
+
+    private int physical(int logical) {
+        return (head + logical) % capacity;
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime toLocalDateTime(long ts) {
+        return Instant.ofEpochMilli(ts).atZone(ZoneId.of("UTC")).toLocalDateTime();
+    }
+}
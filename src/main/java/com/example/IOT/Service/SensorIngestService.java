@@ -0,0 +1,45 @@
+package com.example.IOT.Service;
+
+import com.example.IOT.Entity.DataSensor;
+import com.example.IOT.Repository.DataSensorRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+@Service
+public class SensorIngestService {
+
+    @Autowired
+    private DataSensorRepository dataSensorRepository;
+
+    @Autowired
+    private SensorDeadbandService sensorDeadbandService;
+
+    @Autowired
+    private RuleEngineService ruleEngineService;
+
+    @Autowired
+    private SensorHistoryStore sensorHistoryStore;
+
+    private final Object persistLock = new Object();
+
+    /**
+     * Xử lý 1 bản tin cảm biến đã parse (dùng chung cho payload JSON và binary)
+     */
+    public void ingest(DataSensor sensor) {
+        // Chỉ lưu DB khi giá trị thay đổi vượt ngưỡng hoặc quá thời gian heartbeat.
+        // Adapter JSON và binary chạy trên 2 luồng MQTT khác nhau: quyết định lưu và cập nhật
+        // mốc so sánh phải nằm chung 1 khóa, nếu không cả 2 có thể cùng lưu theo 1 mốc cũ.
+        synchronized (persistLock) {
+            if (sensorDeadbandService.shouldPersist(sensor)) {
+                dataSensorRepository.save(sensor);
+                sensorDeadbandService.markPersisted(sensor);
+                // Cửa sổ gần nhất trong bộ nhớ chứa đúng các bản ghi đã lưu (kèm id)
+                sensorHistoryStore.add(sensor);
+                System.out.println("✅ Saved datasensor: " + sensor);
+            }
+        }
+
+        // Đánh giá luật tự động sau khi đã lưu, lỗi gửi lệnh không làm mất dữ liệu
+        ruleEngineService.onReading(sensor);
+    }
+}
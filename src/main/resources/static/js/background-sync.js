@@ -15,6 +15,7 @@ function fmtTime(t) {
 const SYNC_CONFIG = {
     // === CHART DATA CONFIG ===
     API_URL: 'http://localhost:8080/api/dashboard/chart',     // API lấy dữ liệu sensor
+    RANGE_API_URL: 'http://localhost:8080/api/dashboard/chart/range', // API lấy lịch sử gần nhất (bộ nhớ server)
     STORAGE_KEY: 'iot_dashboard_history',                     // Key lưu lịch sử chart data
     SYNC_INTERVAL: 2000,                                      // 2 giây - sync data từ API
     MAX_HISTORY: 20,                                          // Số điểm tối đa trên chart
@@ -53,8 +54,8 @@ class BackgroundDataSync {
         // Load trạng thái thiết bị từ localStorage  
         this.loadDeviceStatesFromStorage();
         
-        // Bắt đầu sync dữ liệu chart từ API
-        this.startChartDataSync();
+        // Lấy lịch sử chart từ server rồi mới bắt đầu sync dữ liệu chart từ API
+        this.loadChartDataFromServer().finally(() => this.startChartDataSync());
         
         // Cleanup khi thoát trang
         window.addEventListener('beforeunload', () => {
@@ -98,6 +99,41 @@ class BackgroundDataSync {
         }
     }
 
+    // Chuyển 1 bản ghi từ API thành điểm chart
+    toChartPoint(record) {
+        return {
+            temperature: Number(record.temperature ?? record.temp ?? 0),
+            humidity: Number(record.humidity ?? record.hum ?? 0),
+            light: Number(record.light ?? 0),
+            cb1: Number(record.cb1 ?? 0),
+            cb2: Number(record.cb2 ?? 0),
+            cb3: Number(record.cb3 ?? 0),
+            time: record.time || new Date().toISOString(),
+        };
+    }
+
+    // Lấy MAX_HISTORY điểm gần nhất từ server (ring buffer phía backend).
+    // Lỗi thì giữ nguyên dữ liệu đã load từ localStorage.
+    async loadChartDataFromServer() {
+        try {
+            const response = await fetch(`${SYNC_CONFIG.RANGE_API_URL}?limit=${SYNC_CONFIG.MAX_HISTORY}`);
+            if (!response.ok) throw new Error(`HTTP ${response.status}`);
+
+            const records = await response.json();
+            if (Array.isArray(records) && records.length > 0) {
+                this.historyData = records.map(record => this.toChartPoint(record));
+                this.saveChartDataToStorage();
+
+                window.dispatchEvent(new CustomEvent('dataUpdated', {
+                    detail: { newPoint: this.historyData[this.historyData.length - 1], allData: this.historyData }
+                }));
+                console.log(`📦 Chart: Loaded ${this.historyData.length} data points from server`);
+            }
+        } catch (error) {
+            console.warn('⚠️ Chart: Could not load history from server:', error.message);
+        }
+    }
+
     // Fetch dữ liệu mới từ API và cập nhật chart
     async fetchChartDataFromAPI() {
         try {
@@ -108,15 +144,7 @@ class BackgroundDataSync {
             const record = Array.isArray(raw) ? raw[0] : raw;
             
             if (record) {
-                const newPoint = {
-                    temperature: Number(record.temperature ?? record.temp ?? 0),
-                    humidity: Number(record.humidity ?? record.hum ?? 0),
-                    light: Number(record.light ?? 0),
-                    cb1: Number(record.cb1 ?? 0),
-                    cb2: Number(record.cb2 ?? 0),
-                    cb3: Number(record.cb3 ?? 0),
-                    time: record.time || new Date().toISOString(),
-                };
+                const newPoint = this.toChartPoint(record);
 
                 // Kiểm tra trùng lặp dựa trên timestamp và giá trị
                 const isDuplicate = this.historyData.length > 0 && 
@@ -0,0 +1,111 @@
+package com.example.IOT.Service;
+
+import com.example.IOT.Entity.ActionHistory;
+import com.example.IOT.dto.ControlDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DeviceControlServiceTest {
+
+	private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+	private DeviceControlService service;
+
+	@BeforeEach
+	void setUp() {
+		MessageChannel controlChannel = mock(MessageChannel.class);
+		when(controlChannel.send(any())).thenAnswer(invocation -> {
+			Message<?> message = invocation.getArgument(0);
+			sent.add(message.getPayload().toString());
+			return true;
+		});
+
+		service = new DeviceControlService();
+		ReflectionTestUtils.setField(service, "controlChannel", controlChannel);
+		ReflectionTestUtils.setField(service, "coalesceMillis", 100L);
+	}
+
+	@Test
+	void firstCommandIsSentImmediately() {
+		service.submitCommand("DEV1", "ON");
+		assertEquals(List.of(command("DEV1", "ON")), sent);
+	}
+
+	@Test
+	void lateAckOnlyCompletesMatchingStatus() throws Exception {
+		CompletableFuture<ActionHistory> on = service.submitCommand("DEV1", "ON");
+		CompletableFuture<ActionHistory> off = service.submitCommand("DEV1", "OFF");
+		waitForSent(2);
+
+		// Phản hồi ON đến sau khi OFF đã gửi: chỉ hoàn thành lệnh ON
+		service.completeRequest("DEV1", history("DEV1", "ON"));
+		assertEquals("ON", on.get(1, TimeUnit.SECONDS).getStatus());
+		assertFalse(off.isDone());
+
+		service.completeRequest("DEV1", history("DEV1", "OFF"));
+		assertEquals("OFF", off.get(1, TimeUnit.SECONDS).getStatus());
+	}
+
+	@Test
+	void followUpsInWindowAreCoalesced() throws Exception {
+		service.submitCommand("DEV1", "ON");
+		CompletableFuture<ActionHistory> second = service.submitCommand("DEV1", "OFF");
+		CompletableFuture<ActionHistory> third = service.submitCommand("DEV1", "ON");
+		waitForSent(2);
+		Thread.sleep(200);
+
+		// Lệnh đầu gửi ngay, 2 lệnh sau gộp thành 1 (trạng thái cuối)
+		assertEquals(List.of(command("DEV1", "ON"), command("DEV1", "ON")), sent);
+		assertEquals(second, third);
+	}
+
+	@Test
+	void batchSendsOneCommandPerDevice() throws Exception {
+		Map<String, CompletableFuture<ActionHistory>> results = service.submitBatch(List.of(
+				control("DEV1", "ON"), control("DEV2", "ON"), control("DEV1", "OFF")));
+		Thread.sleep(200);
+
+		assertEquals(List.of("DEV1", "DEV2"), new ArrayList<>(results.keySet()));
+		assertEquals(List.of(command("DEV1", "OFF"), command("DEV2", "ON")), sent);
+	}
+
+	private void waitForSent(int count) throws InterruptedException {
+		for (int i = 0; i < 50 && sent.size() < count; i++) {
+			Thread.sleep(20);
+		}
+		assertEquals(count, sent.size());
+	}
+
+	private static ControlDto control(String device, String status) {
+		ControlDto dto = new ControlDto();
+		dto.setDevice(device);
+		dto.setStatus(status);
+		return dto;
+	}
+
+	private static ActionHistory history(String device, String status) {
+		ActionHistory history = new ActionHistory();
+		history.setDevice(device);
+		history.setStatus(status);
+		return history;
+	}
+
+	private static String command(String device, String status) {
+		return "{\"device\":\"" + device + "\",\"status\":\"" + status + "\"}";
+	}
+}
@@ -0,0 +1,157 @@
+package com.example.IOT.Service;
+
+import com.example.IOT.Config.AutomationProperties;
+import com.example.IOT.Entity.DataSensor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RuleEngineServiceTest {
+
+	private static final LocalDateTime BASE = LocalDateTime.of(2025, 1, 1, 8, 0, 0);
+
+	private final List<String> sent = new ArrayList<>();
+	private MessageChannel controlChannel;
+
+	@BeforeEach
+	void setUp() {
+		controlChannel = mock(MessageChannel.class);
+		when(controlChannel.send(any())).thenAnswer(invocation -> {
+			Message<?> message = invocation.getArgument(0);
+			sent.add(message.getPayload().toString());
+			return true;
+		});
+	}
+
+	@Test
+	void avgOverSlidingWindow() {
+		RuleEngineService engine = engine(rule("avg", 10, 30, 0, "OFF", 0));
+
+		engine.onReading(reading(0, 29));
+		engine.onReading(reading(5, 32));   // avg 30.5 > 30
+		assertEquals(List.of(command("ON")), sent);
+
+		// Mẫu 29 ra khỏi cửa sổ 10s: avg(32, 27) = 29.5 -> hết điều kiện -> gửi OFF
+		engine.onReading(reading(12, 27));
+		assertEquals(List.of(command("ON"), command("OFF")), sent);
+	}
+
+	@Test
+	void maxOverSlidingWindow() {
+		RuleEngineService engine = engine(rule("max", 10, 30, 0, "OFF", 0));
+
+		engine.onReading(reading(0, 35));
+		assertEquals(List.of(command("ON")), sent);
+
+		// 35 vẫn trong cửa sổ nên max vẫn là 35
+		engine.onReading(reading(5, 20));
+		engine.onReading(reading(9, 25));
+		assertEquals(1, sent.size());
+
+		// 35 ra khỏi cửa sổ, max = 25 < 30 -> OFF
+		engine.onReading(reading(11, 20));
+		assertEquals(List.of(command("ON"), command("OFF")), sent);
+	}
+
+	@Test
+	void hysteresisRearmsOnlyAfterRelease() {
+		RuleEngineService engine = engine(rule("value", 0, 30, 1, "OFF", 0));
+
+		engine.onReading(reading(0, 31));
+		engine.onReading(reading(1, 32));   // đang active, không gửi lại
+		engine.onReading(reading(2, 29.5)); // trong vùng trễ (29..30), chưa release
+		assertEquals(List.of(command("ON")), sent);
+
+		engine.onReading(reading(3, 28.9)); // dưới 29 -> release
+		engine.onReading(reading(4, 31));   // kích hoạt lại
+		assertEquals(List.of(command("ON"), command("OFF"), command("ON")), sent);
+	}
+
+	@Test
+	void cooldownSuppressesCommands() {
+		RuleEngineService engine = engine(rule("value", 0, 30, 0, "OFF", 3600));
+
+		engine.onReading(reading(0, 31));
+		engine.onReading(reading(1, 20));
+		engine.onReading(reading(2, 31));
+		assertEquals(List.of(command("ON")), sent);
+	}
+
+	@Test
+	void clockResetClearsWindow() {
+		RuleEngineService engine = engine(rule("max", 60, 30, 0, "OFF", 0));
+
+		engine.onReading(reading(3600, 35));
+		assertEquals(List.of(command("ON")), sent);
+
+		// ESP8266 reset đồng hồ về BASE: mẫu 35 ở "tương lai" phải bị bỏ
+		engine.onReading(reading(0, 20));
+		assertEquals(List.of(command("ON"), command("OFF")), sent);
+	}
+
+	@Test
+	void invalidRulesFailAtStartup() {
+		AutomationProperties.Rule noDevice = rule("value", 0, 30, 0, "OFF", 0);
+		noDevice.setDevice(null);
+		assertThrows(IllegalArgumentException.class, () -> engine(noDevice));
+
+		AutomationProperties.Rule noWindow = rule("avg", 0, 30, 0, "OFF", 0);
+		assertThrows(IllegalArgumentException.class, () -> engine(noWindow));
+
+		AutomationProperties.Rule badOperator = rule("value", 0, 30, 0, "OFF", 0);
+		badOperator.setOperator(">=");
+		assertThrows(IllegalArgumentException.class, () -> engine(badOperator));
+	}
+
+	private RuleEngineService engine(AutomationProperties.Rule rule) {
+		AutomationProperties properties = new AutomationProperties();
+		properties.setEnabled(true);
+		properties.setRules(List.of(rule));
+
+		RuleEngineService engine = new RuleEngineService();
+		ReflectionTestUtils.setField(engine, "automationProperties", properties);
+		ReflectionTestUtils.setField(engine, "controlChannel", controlChannel);
+		engine.compile();
+		return engine;
+	}
+
+	private static AutomationProperties.Rule rule(String aggregate, long windowSeconds, double threshold,
+												  double hysteresis, String releaseStatus, long cooldownSeconds) {
+		AutomationProperties.Rule rule = new AutomationProperties.Rule();
+		rule.setName("test");
+		rule.setField("temperature");
+		rule.setAggregate(aggregate);
+		rule.setWindowSeconds(windowSeconds);
+		rule.setOperator(">");
+		rule.setThreshold(threshold);
+		rule.setHysteresis(hysteresis);
+		rule.setDevice("DEV2");
+		rule.setStatus("ON");
+		rule.setReleaseStatus(releaseStatus);
+		rule.setCooldownSeconds(cooldownSeconds);
+		return rule;
+	}
+
+	private static DataSensor reading(long second, double temperature) {
+		DataSensor sensor = new DataSensor();
+		sensor.setTime(BASE.plusSeconds(second));
+		sensor.setTemperature(temperature);
+		return sensor;
+	}
+
+	private static String command(String status) {
+		return "{\"device\":\"DEV2\",\"status\":\"" + status + "\"}";
+	}
+}
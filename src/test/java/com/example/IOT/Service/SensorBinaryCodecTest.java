@@ -0,0 +1,93 @@
+package com.example.IOT.Service;
+
+import com.example.IOT.Entity.DataSensor;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SensorBinaryCodecTest {
+
+	private static final LocalDateTime BASE = LocalDateTime.of(2025, 1, 1, 8, 0, 0);
+
+	@Test
+	void roundTrip() {
+		List<DataSensor> readings = List.of(
+				reading(BASE, -5.25, 0.0, 0, -1, 0, 100),
+				reading(BASE.plusSeconds(1), 28.5, 65.2, 320, 40, 30, 55),
+				reading(BASE.plusMinutes(1), 327.67, 655.35, 65535, Short.MAX_VALUE, Short.MIN_VALUE, 0));
+
+		byte[] frame = SensorBinaryCodec.encode(readings);
+		assertEquals(SensorBinaryCodec.HEADER_SIZE + 3 * SensorBinaryCodec.RECORD_SIZE, frame.length);
+
+		List<DataSensor> decoded = SensorBinaryCodec.decode(frame);
+		assertEquals(readings.size(), decoded.size());
+		for (int i = 0; i < readings.size(); i++) {
+			DataSensor expected = readings.get(i);
+			DataSensor actual = decoded.get(i);
+			assertEquals(expected.getTime(), actual.getTime());
+			assertEquals(expected.getTemperature(), actual.getTemperature(), 0.001);
+			assertEquals(expected.getHumidity(), actual.getHumidity(), 0.001);
+			assertEquals(expected.getLight(), actual.getLight());
+			assertEquals(expected.getCb1(), actual.getCb1());
+			assertEquals(expected.getCb2(), actual.getCb2());
+			assertEquals(expected.getCb3(), actual.getCb3());
+		}
+	}
+
+	@Test
+	void rejectsMalformedFrames() {
+		byte[] frame = SensorBinaryCodec.encode(List.of(reading(BASE, 28.5, 65.2, 320, 0, 0, 0)));
+
+		// Header cụt
+		assertThrows(IllegalArgumentException.class,
+				() -> SensorBinaryCodec.decode(Arrays.copyOf(frame, SensorBinaryCodec.HEADER_SIZE - 1)));
+		// Thiếu byte so với count
+		assertThrows(IllegalArgumentException.class,
+				() -> SensorBinaryCodec.decode(Arrays.copyOf(frame, frame.length - 1)));
+		// Thừa byte so với count
+		assertThrows(IllegalArgumentException.class,
+				() -> SensorBinaryCodec.decode(Arrays.copyOf(frame, frame.length + 1)));
+		// Sai version
+		byte[] badVersion = frame.clone();
+		badVersion[0] = 2;
+		assertThrows(IllegalArgumentException.class, () -> SensorBinaryCodec.decode(badVersion));
+	}
+
+	@Test
+	void rejectsOutOfRangeValues() {
+		assertThrows(IllegalArgumentException.class, () -> SensorBinaryCodec.encode(List.of()));
+		assertThrows(IllegalArgumentException.class,
+				() -> SensorBinaryCodec.encode(List.of(reading(BASE, 327.68, 0, 0, 0, 0, 0))));
+		assertThrows(IllegalArgumentException.class,
+				() -> SensorBinaryCodec.encode(List.of(reading(BASE, 0, -0.01, 0, 0, 0, 0))));
+		assertThrows(IllegalArgumentException.class,
+				() -> SensorBinaryCodec.encode(List.of(reading(BASE, 0, 0, 65536, 0, 0, 0))));
+		assertThrows(IllegalArgumentException.class,
+				() -> SensorBinaryCodec.encode(List.of(reading(BASE, 0, 0, 0, Short.MAX_VALUE + 1, 0, 0))));
+		// Thời gian lùi hoặc delta vượt 2^32 ms
+		assertThrows(IllegalArgumentException.class, () -> SensorBinaryCodec.encode(List.of(
+				reading(BASE, 0, 0, 0, 0, 0, 0),
+				reading(BASE.minusSeconds(1), 0, 0, 0, 0, 0, 0))));
+		assertThrows(IllegalArgumentException.class, () -> SensorBinaryCodec.encode(List.of(
+				reading(BASE, 0, 0, 0, 0, 0, 0),
+				reading(BASE.plusDays(50), 0, 0, 0, 0, 0, 0))));
+	}
+
+	private static DataSensor reading(LocalDateTime time, double temperature, double humidity,
+									  int light, int cb1, int cb2, int cb3) {
+		DataSensor sensor = new DataSensor();
+		sensor.setTime(time);
+		sensor.setTemperature(temperature);
+		sensor.setHumidity(humidity);
+		sensor.setLight(light);
+		sensor.setCb1(cb1);
+		sensor.setCb2(cb2);
+		sensor.setCb3(cb3);
+		return sensor;
+	}
+}
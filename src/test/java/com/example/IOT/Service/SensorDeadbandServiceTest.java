@@ -0,0 +1,109 @@
+package com.example.IOT.Service;
+
+import com.example.IOT.Entity.DataSensor;
+import com.example.IOT.Repository.DataSensorRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SensorDeadbandServiceTest {
+
+	private static final LocalDateTime BASE = LocalDateTime.of(2025, 1, 1, 8, 0, 0);
+
+	private SensorDeadbandService deadband;
+
+	@BeforeEach
+	void setUp() {
+		deadband = new SensorDeadbandService();
+		ReflectionTestUtils.setField(deadband, "enabled", true);
+		ReflectionTestUtils.setField(deadband, "temperatureEpsilon", 0.2);
+		ReflectionTestUtils.setField(deadband, "humidityEpsilon", 0.5);
+		ReflectionTestUtils.setField(deadband, "lightEpsilon", 5);
+		ReflectionTestUtils.setField(deadband, "cbEpsilon", 1);
+		ReflectionTestUtils.setField(deadband, "heartbeatSeconds", 60L);
+	}
+
+	@Test
+	void persistsOnlyWhenFieldMovesBeyondEpsilon() {
+		assertTrue(persist(reading(BASE, 28.0, 65.0, 300)));
+
+		assertFalse(deadband.shouldPersist(reading(BASE.plusSeconds(1), 28.2, 65.5, 305)));
+		assertTrue(persist(reading(BASE.plusSeconds(2), 28.3, 65.0, 300)));
+		// So sánh với bản ghi đã lưu gần nhất (28.3), không phải bản tin gần nhất
+		assertFalse(deadband.shouldPersist(reading(BASE.plusSeconds(3), 28.4, 65.0, 300)));
+		assertTrue(persist(reading(BASE.plusSeconds(4), 28.3, 65.0, 306)));
+
+		assertEquals(3L, deadband.getStats().get("persisted"));
+		assertEquals(5L, deadband.getStats().get("received"));
+		assertEquals(2L, deadband.getStats().get("suppressed"));
+		assertEquals(0.4, (double) deadband.getStats().get("writeReductionRatio"), 1e-9);
+	}
+
+	@Test
+	void persistsOnHeartbeatAndClockReset() {
+		assertTrue(persist(reading(BASE, 28.0, 65.0, 300)));
+
+		assertFalse(deadband.shouldPersist(reading(BASE.plusSeconds(59), 28.0, 65.0, 300)));
+		assertTrue(persist(reading(BASE.plusSeconds(60), 28.0, 65.0, 300)));
+		// Đồng hồ lùi (ESP8266 reset) cũng lưu
+		assertTrue(deadband.shouldPersist(reading(BASE.minusHours(1), 28.0, 65.0, 300)));
+	}
+
+	@Test
+	void failedSaveDoesNotMoveBaseline() {
+		DataSensorRepository repository = mock(DataSensorRepository.class);
+		when(repository.save(any(DataSensor.class))).thenThrow(new RuntimeException("DB down"));
+
+		SensorIngestService ingest = new SensorIngestService();
+		ReflectionTestUtils.setField(ingest, "dataSensorRepository", repository);
+		ReflectionTestUtils.setField(ingest, "sensorDeadbandService", deadband);
+		ReflectionTestUtils.setField(ingest, "ruleEngineService", mock(RuleEngineService.class));
+		ReflectionTestUtils.setField(ingest, "sensorHistoryStore", mock(SensorHistoryStore.class));
+
+		DataSensor first = reading(BASE, 28.0, 65.0, 300);
+		assertThrows(RuntimeException.class, () -> ingest.ingest(first));
+
+		// Lần lưu lỗi không được tính: bản tin giống hệt vẫn phải được thử lưu lại
+		assertThrows(RuntimeException.class, () -> ingest.ingest(reading(BASE.plusSeconds(1), 28.0, 65.0, 300)));
+		verify(repository, times(2)).save(any(DataSensor.class));
+		assertEquals(0L, deadband.getStats().get("persisted"));
+		assertEquals(2L, deadband.getStats().get("failed"));
+		assertEquals(0.0, (double) deadband.getStats().get("writeReductionRatio"), 1e-9);
+	}
+
+	@Test
+	void disabledPersistsEverything() {
+		ReflectionTestUtils.setField(deadband, "enabled", false);
+		assertTrue(persist(reading(BASE, 28.0, 65.0, 300)));
+		assertTrue(persist(reading(BASE.plusSeconds(1), 28.0, 65.0, 300)));
+	}
+
+	private boolean persist(DataSensor sensor) {
+		boolean result = deadband.shouldPersist(sensor);
+		if (result) {
+			deadband.markPersisted(sensor);
+		}
+		return result;
+	}
+
+	private static DataSensor reading(LocalDateTime time, double temperature, double humidity, int light) {
+		DataSensor sensor = new DataSensor();
+		sensor.setTime(time);
+		sensor.setTemperature(temperature);
+		sensor.setHumidity(humidity);
+		sensor.setLight(light);
+		return sensor;
+	}
+}
